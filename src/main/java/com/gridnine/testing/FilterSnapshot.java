@@ -0,0 +1,265 @@
+package com.gridnine.testing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists exclusion results as flight-index bitmaps so they can be reloaded after a restart.
+ * A snapshot holds the rule set, a fingerprint per flight and a bitmap of the flights
+ * that passed every rule, followed by a CRC32 of the whole payload.
+ * Missing or damaged snapshots are ignored and the flights are evaluated in full.
+ */
+class FilterSnapshot {
+
+    private final static int MAGIC = 0x464C5453;
+    private final static int VERSION = 3;
+
+    /**
+     * Rules depending on the current time, re-applied to restored flights
+     */
+    private final static String[] TIME_DEPENDENT_EXCLUSIONS = {
+        "DEPARTURE_BEFORE_CURRENT_TIME"
+    };
+
+    private final String[] rules;
+    private final long[] fingerprints;
+    private final BitSet passed;
+
+    private FilterSnapshot(String[] rules, long[] fingerprints, BitSet passed) {
+        this.rules = rules;
+        this.fingerprints = fingerprints;
+        this.passed = passed;
+    }
+
+    /**
+     * Method for excluding flights, reusing the snapshot stored in the given file
+     * and rewriting it only if the result differs from the stored one
+     */
+    static List<Flight> excludeFlights(Path file, List<Flight> flights, String... rules) throws IOException {
+        Restored restored = restoreFlights(file, flights, rules);
+        if (restored.changed) {
+            save(file, flights, restored.flights, rules);
+        }
+        return restored.flights;
+    }
+
+    /**
+     * Method for evaluating exclusion rules over the flights and writing the result to the given file
+     */
+    static void save(Path file, List<Flight> flights, String... rules) throws IOException {
+        save(file, flights, FlightFilter.excludeFlights(flights, rules), rules);
+    }
+
+    /**
+     * Writes an exclusion result computed for the flights, which must keep the order of the flights
+     */
+    private static void save(Path file, List<Flight> flights, List<Flight> filteredFlights, String... rules) throws IOException {
+        long[] fingerprints = fingerprints(flights);
+        BitSet passed = new BitSet(flights.size());
+        int next = 0;
+        for (int i = 0; i < flights.size() && next < filteredFlights.size(); i++) {
+            if (flights.get(i) == filteredFlights.get(next)) {
+                passed.set(i);
+                next++;
+            }
+        }
+        if (next != filteredFlights.size()) {
+            throw new IllegalArgumentException("filtered flights are not a subsequence of the flights");
+        }
+        new FilterSnapshot(normalize(rules), fingerprints, passed).write(file);
+    }
+
+    /**
+     * Method for restoring an exclusion result, re-evaluating only flights changed since the snapshot.
+     * Falls back to full evaluation if the file is missing or was written for other rules.
+     */
+    static List<Flight> restore(Path file, List<Flight> flights, String... rules) throws IOException {
+        return restoreFlights(file, flights, rules).flights;
+    }
+
+    private static Restored restoreFlights(Path file, List<Flight> flights, String... rules) throws IOException {
+        FilterSnapshot snapshot = read(file);
+        if (snapshot == null || !Arrays.equals(snapshot.rules, normalize(rules))) {
+            return new Restored(FlightFilter.excludeFlights(flights, rules), true);
+        }
+
+        long[] fingerprints = fingerprints(flights);
+        boolean unchanged = Arrays.equals(snapshot.fingerprints, fingerprints);
+        List<Flight> filteredFlights;
+        if (unchanged) {
+            filteredFlights = new ArrayList<>(snapshot.passed.cardinality());
+            for (int i = snapshot.passed.nextSetBit(0); i >= 0; i = snapshot.passed.nextSetBit(i + 1)) {
+                filteredFlights.add(flights.get(i));
+            }
+        } else {
+            Map<Long, Boolean> known = new HashMap<>();
+            for (int i = 0; i < snapshot.fingerprints.length; i++) {
+                known.put(snapshot.fingerprints[i], snapshot.passed.get(i));
+            }
+            filteredFlights = new ArrayList<>();
+            for (int i = 0; i < flights.size(); i++) {
+                Flight flight = flights.get(i);
+                Boolean wasPassed = known.get(fingerprints[i]);
+                if (wasPassed == null) {
+                    wasPassed = !FlightFilter.excludeFlights(List.of(flight), rules).isEmpty();
+                }
+                if (wasPassed) filteredFlights.add(flight);
+            }
+        }
+
+        int restoredCount = filteredFlights.size();
+        for (String rule : TIME_DEPENDENT_EXCLUSIONS) {
+            if (Arrays.asList(snapshot.rules).contains(rule)) {
+                filteredFlights = FlightFilter.excludeFlights(filteredFlights, rule);
+            }
+        }
+        return new Restored(filteredFlights, !unchanged || filteredFlights.size() != restoredCount);
+    }
+
+    private void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)), crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(rules.length);
+                for (String rule : rules) {
+                    out.writeUTF(rule);
+                }
+                out.writeInt(fingerprints.length);
+                for (long fingerprint : fingerprints) {
+                    out.writeLong(fingerprint);
+                }
+                long[] words = passed.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+                out.writeLong(crc.getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a snapshot, returns null if the file is missing, truncated or damaged
+     */
+    private static FilterSnapshot read(Path file) throws IOException {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int ruleCount = in.readInt();
+            if (ruleCount < 0 || ruleCount > size) {
+                return null;
+            }
+            String[] rules = new String[ruleCount];
+            for (int i = 0; i < rules.length; i++) {
+                rules[i] = in.readUTF();
+            }
+            int fingerprintCount = in.readInt();
+            if (fingerprintCount < 0 || fingerprintCount > size / Long.BYTES) {
+                return null;
+            }
+            long[] fingerprints = new long[fingerprintCount];
+            for (int i = 0; i < fingerprints.length; i++) {
+                fingerprints[i] = in.readLong();
+            }
+            int wordCount = in.readInt();
+            if (wordCount < 0 || wordCount > size / Long.BYTES) {
+                return null;
+            }
+            long[] words = new long[wordCount];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            long payloadCrc = crc.getValue();
+            if (in.readLong() != payloadCrc || in.read() != -1) {
+                return null;
+            }
+            BitSet passed = BitSet.valueOf(words);
+            if (passed.length() > fingerprints.length) {
+                return null;
+            }
+            return new FilterSnapshot(rules, fingerprints, passed);
+        } catch (EOFException | UTFDataFormatException | NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static String[] normalize(String[] rules) {
+        String[] normalized = new String[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            normalized[i] = rules[i].toUpperCase();
+        }
+        return normalized;
+    }
+
+    private static long[] fingerprints(List<Flight> flights) {
+        long[] fingerprints = new long[flights.size()];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = fingerprint(flights.get(i));
+        }
+        return fingerprints;
+    }
+
+    private static long fingerprint(Flight flight) {
+        long hash = 0xCBF29CE484222325L;
+        for (Segment segment : flight.getSegments()) {
+            hash = mix(hash, segment.getDepartureDate());
+            hash = mix(hash, segment.getArrivalDate());
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, LocalDateTime date) {
+        hash = (hash ^ date.toEpochSecond(ZoneOffset.UTC)) * 0x100000001B3L;
+        return (hash ^ date.getNano()) * 0x100000001B3L;
+    }
+
+    /**
+     * Restored exclusion result and whether it differs from the stored snapshot
+     */
+    private static class Restored {
+        private final List<Flight> flights;
+        private final boolean changed;
+
+        private Restored(List<Flight> flights, boolean changed) {
+            this.flights = flights;
+            this.changed = changed;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.gridnine.testing;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Flight list supporting concurrent updates while readers filter.
+ * Flights are kept in copy-on-write chunks: a write copies one or two chunks and the small array
+ * of chunk references, then publishes it with compare-and-set instead of locking.
+ * Chunks below half of CHUNK_SIZE are merged with a neighbour on removal, so apart from the last one
+ * every chunk stays at least half full and the chunk reference array stays small.
+ * Readers get an immutable snapshot that is never changed afterwards.
+ */
+class FlightInventory {
+
+    final static int CHUNK_SIZE = 256;
+
+    private final AtomicReference<Snapshot> flights;
+
+    FlightInventory() {
+        flights = new AtomicReference<>(new Snapshot(new Flight[0][]));
+    }
+
+    FlightInventory(List<Flight> initialFlights) {
+        Flight[] all = initialFlights.toArray(new Flight[0]);
+        Flight[][] chunks = new Flight[(all.length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(all, i * CHUNK_SIZE, Math.min(all.length, (i + 1) * CHUNK_SIZE));
+            for (Flight flight : chunks[i]) {
+                Objects.requireNonNull(flight);
+            }
+        }
+        flights = new AtomicReference<>(new Snapshot(chunks));
+    }
+
+    /**
+     * Immutable view of the flights at the moment of the call, safe to pass to FlightFilter
+     */
+    List<Flight> snapshot() {
+        return flights.get();
+    }
+
+    int size() {
+        return flights.get().size();
+    }
+
+    int chunkCount() {
+        return flights.get().chunks.length;
+    }
+
+    void add(Flight flight) {
+        Objects.requireNonNull(flight);
+        while (true) {
+            Snapshot current = flights.get();
+            if (flights.compareAndSet(current, current.with(flight))) return;
+        }
+    }
+
+    /**
+     * Removes a flight equal to the given one, returns false if there is none.
+     * Finding the flight is a linear scan; on a CAS retry the scan is skipped as long as the chunk
+     * holding the flight was not replaced, which concurrent adds to other chunks never do.
+     */
+    boolean remove(Flight flight) {
+        Snapshot previous = null;
+        long position = -1;
+        while (true) {
+            Snapshot current = flights.get();
+            position = current.locate(flight, previous, position);
+            if (position < 0) return false;
+            if (flights.compareAndSet(current, current.without(position))) return true;
+            previous = current;
+        }
+    }
+
+    /**
+     * Replaces a flight equal to the old one in place, returns false if there is none.
+     * Retries reuse the found position the same way remove does.
+     */
+    boolean replace(Flight oldFlight, Flight newFlight) {
+        Objects.requireNonNull(newFlight);
+        Snapshot previous = null;
+        long position = -1;
+        while (true) {
+            Snapshot current = flights.get();
+            position = current.locate(oldFlight, previous, position);
+            if (position < 0) return false;
+            if (flights.compareAndSet(current, current.replacing(position, newFlight))) return true;
+            previous = current;
+        }
+    }
+
+    /**
+     * Method for excluding flights from the current snapshot without blocking writers
+     */
+    List<Flight> excludeFlights(String... rules) {
+        return FlightFilter.excludeFlights(snapshot(), rules);
+    }
+
+    /**
+     * Method for filtering flights from the current snapshot without blocking writers
+     */
+    List<Flight> filter(String... rules) {
+        return FlightFilter.filter(snapshot(), rules);
+    }
+
+    /**
+     * Immutable list over non-empty chunks, never modified once published.
+     * Positions are chunk index and offset packed in a long.
+     */
+    private static class Snapshot extends AbstractList<Flight> implements RandomAccess {
+        private final Flight[][] chunks;
+        private final int[] starts;
+        private final int size;
+
+        private Snapshot(Flight[][] chunks) {
+            this.chunks = chunks;
+            this.starts = new int[chunks.length];
+            int total = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                starts[i] = total;
+                total += chunks[i].length;
+            }
+            this.size = total;
+        }
+
+        private Snapshot with(Flight flight) {
+            int last = chunks.length - 1;
+            if (last >= 0 && chunks[last].length < CHUNK_SIZE) {
+                Flight[] chunk = Arrays.copyOf(chunks[last], chunks[last].length + 1);
+                chunk[chunk.length - 1] = flight;
+                return withChunk(last, chunk);
+            }
+            Flight[][] updated = Arrays.copyOf(chunks, chunks.length + 1);
+            updated[chunks.length] = new Flight[]{flight};
+            return new Snapshot(updated);
+        }
+
+        private Snapshot without(long position) {
+            int chunkIndex = (int) (position >>> 32);
+            int index = (int) position;
+            Flight[] chunk = chunks[chunkIndex];
+            Flight[] updatedChunk = new Flight[chunk.length - 1];
+            System.arraycopy(chunk, 0, updatedChunk, 0, index);
+            System.arraycopy(chunk, index + 1, updatedChunk, index, chunk.length - index - 1);
+            if (updatedChunk.length >= CHUNK_SIZE / 2) {
+                return withChunk(chunkIndex, updatedChunk);
+            }
+            if (chunks.length == 1) {
+                return new Snapshot(updatedChunk.length == 0 ? new Flight[0][] : new Flight[][]{updatedChunk});
+            }
+
+            int left = chunkIndex + 1 < chunks.length ? chunkIndex : chunkIndex - 1;
+            Flight[] leftChunk = left == chunkIndex ? updatedChunk : chunks[left];
+            Flight[] rightChunk = left == chunkIndex ? chunks[left + 1] : updatedChunk;
+            Flight[] merged = Arrays.copyOf(leftChunk, leftChunk.length + rightChunk.length);
+            System.arraycopy(rightChunk, 0, merged, leftChunk.length, rightChunk.length);
+            if (merged.length <= CHUNK_SIZE) {
+                Flight[][] updated = new Flight[chunks.length - 1][];
+                System.arraycopy(chunks, 0, updated, 0, left);
+                updated[left] = merged;
+                System.arraycopy(chunks, left + 2, updated, left + 1, chunks.length - left - 2);
+                return new Snapshot(updated);
+            }
+            Flight[][] updated = chunks.clone();
+            updated[left] = Arrays.copyOfRange(merged, 0, merged.length / 2);
+            updated[left + 1] = Arrays.copyOfRange(merged, merged.length / 2, merged.length);
+            return new Snapshot(updated);
+        }
+
+        private Snapshot replacing(long position, Flight flight) {
+            int chunkIndex = (int) (position >>> 32);
+            Flight[] updatedChunk = chunks[chunkIndex].clone();
+            updatedChunk[(int) position] = flight;
+            return withChunk(chunkIndex, updatedChunk);
+        }
+
+        private Snapshot withChunk(int chunkIndex, Flight[] chunk) {
+            Flight[][] updated = chunks.clone();
+            updated[chunkIndex] = chunk;
+            return new Snapshot(updated);
+        }
+
+        /**
+         * Position of the flight, reusing the one found in the previous snapshot if its chunk is unchanged
+         */
+        private long locate(Flight flight, Snapshot previous, long position) {
+            if (previous != null && position >= 0) {
+                int chunkIndex = (int) (position >>> 32);
+                if (chunkIndex < chunks.length && chunks[chunkIndex] == previous.chunks[chunkIndex]) {
+                    return position;
+                }
+            }
+            return find(flight);
+        }
+
+        /**
+         * Position of the first flight equal to the given one, or -1
+         */
+        private long find(Flight flight) {
+            for (int i = 0; i < chunks.length; i++) {
+                Flight[] chunk = chunks[i];
+                for (int j = 0; j < chunk.length; j++) {
+                    if (chunk[j].equals(flight)) return ((long) i << 32) | j;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Flight get(int index) {
+            Objects.checkIndex(index, size);
+            int chunkIndex = Arrays.binarySearch(starts, index);
+            if (chunkIndex < 0) chunkIndex = -chunkIndex - 2;
+            return chunks[chunkIndex][index - starts[chunkIndex]];
+        }
+
+        @Override
+        public Iterator<Flight> iterator() {
+            return new Iterator<>() {
+                private int chunkIndex;
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return chunkIndex < chunks.length;
+                }
+
+                @Override
+                public Flight next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    Flight[] chunk = chunks[chunkIndex];
+                    Flight flight = chunk[index++];
+                    if (index == chunk.length) {
+                        chunkIndex++;
+                        index = 0;
+                    }
+                    return flight;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.gridnine.testing;
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.gridnine.testing.FlightBuilder.createFlight;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class FilterSnapshotTests {
+
+    private final static LocalDateTime threeDaysFromNow = LocalDateTime.now().plusDays(3).truncatedTo(ChronoUnit.MINUTES);
+    private final static String[] RULES = {
+            "DEPARTURE_BEFORE_CURRENT_TIME",
+            "ARRIVAL_BEFORE_DEPARTURE",
+            "SET_GROUND_TIME/120"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldCorrectlyRestoreSavedExclusions() throws IOException {
+        List<Flight> flights = FlightBuilder.createFlights();
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+
+        FilterSnapshot.save(file, flights, RULES);
+        List<Flight> actual = FilterSnapshot.restore(file, flights, RULES);
+
+        assertTrue(Files.exists(file));
+        assertEquals(FlightFilter.excludeFlights(flights, RULES), actual);
+    }
+
+    @Test
+    public void shouldCorrectlyReevaluateChangedFlights() throws IOException {
+        List<Flight> flights = new ArrayList<>(FlightBuilder.createFlights());
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+        FilterSnapshot.save(file, flights, RULES);
+
+        flights.remove(0);
+        flights.add(1, createFlight(threeDaysFromNow, threeDaysFromNow.minusHours(1)));
+        flights.add(createFlight(threeDaysFromNow, threeDaysFromNow.plusHours(1),
+                threeDaysFromNow.plusHours(2), threeDaysFromNow.plusHours(3)));
+        List<Flight> actual = FilterSnapshot.restore(file, flights, RULES);
+
+        assertEquals(FlightFilter.excludeFlights(flights, RULES), actual);
+    }
+
+    @Test
+    public void shouldCorrectlyIgnoreSnapshotForOtherRules() throws IOException {
+        List<Flight> flights = FlightBuilder.createFlights();
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+        FilterSnapshot.save(file, flights, RULES);
+
+        List<Flight> actual = FilterSnapshot.restore(file, flights, "SET_GROUND_TIME/60");
+
+        assertEquals(FlightFilter.excludeFlights(flights, "SET_GROUND_TIME/60"), actual);
+    }
+
+    @Test
+    public void shouldCorrectlyExcludeWithoutExistingSnapshot() throws IOException {
+        List<Flight> flights = FlightBuilder.createFlights();
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+
+        List<Flight> actual = FilterSnapshot.excludeFlights(file, flights, "arrival_before_departure");
+
+        assertTrue(Files.exists(file));
+        assertEquals(FlightFilter.excludeFlights(flights, "ARRIVAL_BEFORE_DEPARTURE"), actual);
+        assertEquals(actual, FilterSnapshot.restore(file, flights, "ARRIVAL_BEFORE_DEPARTURE"));
+    }
+
+    @Test
+    public void shouldCorrectlyFallBackFromTruncatedSnapshot() throws IOException {
+        List<Flight> flights = FlightBuilder.createFlights();
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+        FilterSnapshot.save(file, flights, RULES);
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        List<Flight> actual = FilterSnapshot.restore(file, flights, RULES);
+
+        assertEquals(FlightFilter.excludeFlights(flights, RULES), actual);
+    }
+
+    @Test
+    public void shouldCorrectlyFallBackFromCorruptedSnapshot() throws IOException {
+        List<Flight> flights = FlightBuilder.createFlights();
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+        FilterSnapshot.save(file, flights, "ARRIVAL_BEFORE_DEPARTURE");
+
+        byte[] bytes = Files.readAllBytes(file);
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] corrupted = bytes.clone();
+            corrupted[i] ^= 0x10;
+            Files.write(file, corrupted);
+
+            List<Flight> actual = FilterSnapshot.restore(file, flights, "ARRIVAL_BEFORE_DEPARTURE");
+
+            assertEquals(FlightFilter.excludeFlights(flights, "ARRIVAL_BEFORE_DEPARTURE"), actual);
+        }
+    }
+
+    @Test
+    public void shouldCorrectlyDropRestoredFlightsDepartedSinceSnapshot() throws IOException, InterruptedException {
+        LocalDateTime soon = LocalDateTime.now().plus(500, ChronoUnit.MILLIS);
+        Flight departingSoon = createFlight(soon, soon.plusHours(2));
+        List<Flight> flights = List.of(
+                createFlight(threeDaysFromNow, threeDaysFromNow.plusHours(2)),
+                departingSoon);
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+        FilterSnapshot.save(file, flights, RULES);
+        assertEquals(flights, FilterSnapshot.restore(file, flights, RULES));
+
+        while (!LocalDateTime.now().isAfter(soon)) {
+            Thread.sleep(50);
+        }
+        List<Flight> actual = FilterSnapshot.restore(file, flights, RULES);
+
+        assertEquals(List.of(flights.get(0)), actual);
+        assertFalse(actual.contains(departingSoon));
+    }
+
+    @Test
+    public void shouldCorrectlyKeepSnapshotFileOnExactHit() throws IOException {
+        List<Flight> flights = FlightBuilder.createFlights();
+        Path file = folder.getRoot().toPath().resolve("exclusions.snapshot");
+        FilterSnapshot.save(file, flights, "ARRIVAL_BEFORE_DEPARTURE");
+        FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, written);
+
+        List<Flight> actual = FilterSnapshot.excludeFlights(file, flights, "ARRIVAL_BEFORE_DEPARTURE");
+
+        assertEquals(FlightFilter.excludeFlights(flights, "ARRIVAL_BEFORE_DEPARTURE"), actual);
+        assertEquals(written, Files.getLastModifiedTime(file));
+
+        List<Flight> changedFlights = new ArrayList<>(flights);
+        changedFlights.add(createFlight(threeDaysFromNow, threeDaysFromNow.minusHours(1)));
+        FilterSnapshot.excludeFlights(file, changedFlights, "ARRIVAL_BEFORE_DEPARTURE");
+
+        assertNotEquals(written, Files.getLastModifiedTime(file));
+    }
+
+}
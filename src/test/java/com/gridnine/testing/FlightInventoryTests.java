@@ -0,0 +1,222 @@
+package com.gridnine.testing;
+
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.gridnine.testing.FlightBuilder.createFlight;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class FlightInventoryTests {
+
+    private final static LocalDateTime threeDaysFromNow = LocalDateTime.now().plusDays(3).truncatedTo(ChronoUnit.MINUTES);
+
+    @Test
+    public void shouldCorrectlyKeepSnapshotUnchangedAfterUpdates() {
+        FlightInventory inventory = new FlightInventory(FlightBuilder.createFlights());
+        List<Flight> snapshot = inventory.snapshot();
+        List<Flight> expected = new ArrayList<>(snapshot);
+
+        Flight added = createFlight(threeDaysFromNow, threeDaysFromNow.plusHours(1));
+        inventory.add(added);
+        assertTrue(inventory.remove(snapshot.get(0)));
+        assertTrue(inventory.replace(snapshot.get(1), createFlight(threeDaysFromNow, threeDaysFromNow.plusHours(3))));
+        assertFalse(inventory.remove(createFlight(threeDaysFromNow, threeDaysFromNow.plusHours(9))));
+
+        assertEquals(expected, snapshot);
+        assertEquals(expected.size(), inventory.size());
+        assertEquals(added, inventory.snapshot().get(expected.size() - 1));
+    }
+
+    @Test
+    public void shouldCorrectlyUpdateInventorySpanningSeveralChunks() {
+        List<Flight> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(createFlight(threeDaysFromNow.plusMinutes(i), threeDaysFromNow.plusMinutes(i + 60)));
+        }
+        FlightInventory inventory = new FlightInventory(expected.subList(0, 300));
+        for (Flight flight : expected.subList(300, 1000)) {
+            inventory.add(flight);
+        }
+        assertEquals(expected, inventory.snapshot());
+
+        for (int i = 999; i >= 0; i -= 3) {
+            assertTrue(inventory.remove(expected.remove(i)));
+        }
+        Flight newFlight = createFlight(threeDaysFromNow, threeDaysFromNow.plusHours(5));
+        assertTrue(inventory.replace(expected.get(500), newFlight));
+        expected.set(500, newFlight);
+
+        assertEquals(expected, inventory.snapshot());
+        assertEquals(expected.size(), inventory.size());
+
+        FlightInventory singleFlightChunk = new FlightInventory(expected.subList(0, 257));
+        assertTrue(singleFlightChunk.remove(expected.get(256)));
+        assertEquals(expected.subList(0, 256), singleFlightChunk.snapshot());
+        singleFlightChunk.add(expected.get(300));
+        assertEquals(expected.get(300), singleFlightChunk.snapshot().get(256));
+    }
+
+    @Test
+    public void shouldCorrectlyKeepChunkCountBoundedUnderChurn() {
+        int size = 2000;
+        List<Flight> expected = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            expected.add(createFlight(threeDaysFromNow.plusMinutes(i), threeDaysFromNow.plusMinutes(i + 60)));
+        }
+        FlightInventory inventory = new FlightInventory(expected);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(inventory.remove(expected.remove(random.nextInt(expected.size()))));
+            Flight added = createFlight(threeDaysFromNow.plusMinutes(size + i), threeDaysFromNow.plusMinutes(size + i + 60));
+            inventory.add(added);
+            expected.add(added);
+            assertTrue(inventory.chunkCount() <= size / (FlightInventory.CHUNK_SIZE / 2) + 1);
+        }
+
+        assertEquals(expected, inventory.snapshot());
+    }
+
+    @Test
+    public void shouldCorrectlyRejectNullFlights() {
+        FlightInventory inventory = new FlightInventory(FlightBuilder.createFlights());
+
+        Flight flight = inventory.snapshot().get(0);
+        try {
+            inventory.add(null);
+            fail();
+        } catch (NullPointerException ignored) {
+        }
+        try {
+            inventory.replace(flight, null);
+            fail();
+        } catch (NullPointerException ignored) {
+        }
+        try {
+            new FlightInventory(Arrays.asList(flight, null));
+            fail();
+        } catch (NullPointerException ignored) {
+        }
+        assertEquals(FlightBuilder.createFlights(), inventory.snapshot());
+    }
+
+    @Test
+    public void shouldCorrectlyExcludeFlightsFromInventory() {
+        FlightInventory inventory = new FlightInventory(FlightBuilder.createFlights());
+
+        List<Flight> expected = FlightFilter.excludeFlights(FlightBuilder.createFlights(), "SET_GROUND_TIME/120");
+
+        assertEquals(expected, inventory.excludeFlights("SET_GROUND_TIME/120"));
+    }
+
+    @Test
+    public void shouldCorrectlyFilterWhileWritersUpdateInventory() throws InterruptedException {
+        int writers = 4;
+        int readers = 4;
+        int iterations = 2000;
+        List<Flight> initialFlights = FlightBuilder.createFlights();
+        FlightInventory inventory = new FlightInventory(initialFlights);
+        ExecutorService executor = Executors.newFixedThreadPool(writers * 2 + readers);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(writers * 2);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int stableSize = initialFlights.size() + writers;
+
+        try {
+            List<Flight> flights = new ArrayList<>();
+            List<Flight> otherFlights = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                LocalDateTime base = threeDaysFromNow.plusDays(10L * (w + 1));
+                Flight flight = createFlight(base, base.plusHours(1));
+                Flight otherFlight = createFlight(base, base.plusHours(2));
+                inventory.add(flight);
+                flights.add(flight);
+                otherFlights.add(otherFlight);
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < iterations; i++) {
+                            assertTrue(inventory.replace(flight, otherFlight));
+                            assertTrue(inventory.replace(otherFlight, flight));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        writersDone.countDown();
+                    }
+                });
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < iterations; i++) {
+                            Flight added = createFlight(base.plusMinutes(i), base.plusMinutes(i + 30));
+                            inventory.add(added);
+                            assertTrue(inventory.remove(added));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        writersDone.countDown();
+                    }
+                });
+            }
+
+            for (int r = 0; r < readers; r++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        while (running.get()) {
+                            List<Flight> snapshot = inventory.snapshot();
+                            List<Flight> copy = new ArrayList<>(snapshot);
+                            assertTrue(snapshot.size() >= stableSize && snapshot.size() <= stableSize + writers);
+                            List<Flight> excluded = FlightFilter.excludeFlights(snapshot,
+                                    "DEPARTURE_BEFORE_CURRENT_TIME", "SET_GROUND_TIME/120");
+                            FlightFilter.filter(snapshot, "NUMBER_OF_SEGMENTS/1");
+                            assertTrue(excluded.size() <= snapshot.size());
+                            assertEquals(copy, snapshot);
+                            assertTrue(snapshot.containsAll(initialFlights));
+                            for (int w = 0; w < writers; w++) {
+                                int occurrences = Collections.frequency(snapshot, flights.get(w))
+                                        + Collections.frequency(snapshot, otherFlights.get(w));
+                                assertEquals(1, occurrences);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+
+            start.countDown();
+            assertTrue(writersDone.await(60, TimeUnit.SECONDS));
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertNull(failure.get());
+        assertEquals(stableSize, inventory.size());
+    }
+
+}